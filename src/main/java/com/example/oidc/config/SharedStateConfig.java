@@ -0,0 +1,56 @@
+package com.example.oidc.config;
+
+import com.example.oidc.model.SharedStateProperties;
+import com.example.oidc.state.DnsPeerDiscovery;
+import com.example.oidc.state.LocalSharedState;
+import com.example.oidc.state.ReplicatedSharedState;
+import com.example.oidc.state.SharedState;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+@Configuration
+public class SharedStateConfig {
+
+    @Bean
+    public SharedState sharedState(SharedStateProperties properties) throws IOException {
+        // Unique per process: a restarted container keeps its hostname but starts counting from zero,
+        // and peers keep the highest count seen per node id
+        String prefix = properties.getNodeId() != null && !properties.getNodeId().isEmpty()
+            ? properties.getNodeId() : "node";
+        String nodeId = prefix + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+        if (properties.getMode() != SharedStateProperties.Mode.REPLICATED) {
+            return new LocalSharedState(nodeId);
+        }
+
+        if (properties.getPeerService() == null || properties.getPeerService().isEmpty()) {
+            throw new IllegalStateException("shared-state.peer-service is required in replicated mode");
+        }
+
+        if (properties.getSecret() == null || properties.getSecret().isEmpty()) {
+            throw new IllegalStateException("shared-state.secret is required in replicated mode");
+        }
+
+        if (properties.getFlushInterval().toMillis() < 1 || properties.getDiscoveryInterval().toMillis() < 1) {
+            throw new IllegalStateException("shared-state.flush-interval and discovery-interval must be at least 1ms");
+        }
+
+        if (properties.getMaxPeers() < 1) {
+            throw new IllegalStateException("shared-state.max-peers must be at least 1");
+        }
+
+        return new ReplicatedSharedState(
+            nodeId,
+            properties.getPort(),
+            properties.getSecret().getBytes(StandardCharsets.UTF_8),
+            new DnsPeerDiscovery(properties.getPeerService(), properties.getPort()),
+            properties.getMaxPeers(),
+            properties.getFlushInterval(),
+            properties.getDiscoveryInterval()
+        );
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.oidc.model;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "shared-state")
+public class SharedStateProperties {
+    private Mode mode = Mode.LOCAL;
+    private String nodeId;
+    private int port = 7946;
+    private String peerService;
+    private String secret;
+    private int maxPeers = 8;
+    private Duration flushInterval = Duration.ofMillis(20);
+    private Duration discoveryInterval = Duration.ofSeconds(5);
+
+    public enum Mode {
+        LOCAL,
+        REPLICATED
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.oidc.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary encoding for a batch of deltas.
+ *
+ * Layout: version byte, node id table (varint size, UTF strings), then the deltas
+ * (varint size; each is a kind byte, UTF key, varint node index, long expiry, varint count).
+ * Node ids are written once per batch since a batch usually carries only a few.
+ * On the wire each frame is preceded by its length and followed by its HMAC.
+ */
+final class DeltaCodec {
+
+    static final byte VERSION = 2;
+
+    // Smallest possible encodings, used to bound counts read off the wire
+    private static final int MIN_NODE_ID_BYTES = 2;
+    private static final int MIN_DELTA_BYTES = 1 + 2 + 1 + 8 + 1;
+
+    // Largest possible encodings, used to split batches into frames by size
+    private static final int MAX_HEADER_BYTES = 1 + 5 + 5;
+    private static final int MAX_DELTA_OVERHEAD_BYTES = 1 + 2 + 5 + 8 + 10;
+
+    private DeltaCodec() {
+    }
+
+    static byte[] encode(List<StateDelta> deltas) throws IOException {
+        Map<String, Integer> nodeIndex = new LinkedHashMap<>();
+        for (StateDelta delta : deltas) {
+            nodeIndex.putIfAbsent(delta.nodeId(), nodeIndex.size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + deltas.size() * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        writeVarLong(out, nodeIndex.size());
+        for (String nodeId : nodeIndex.keySet()) {
+            out.writeUTF(nodeId);
+        }
+        writeVarLong(out, deltas.size());
+        for (StateDelta delta : deltas) {
+            out.writeByte(delta.kind().ordinal());
+            out.writeUTF(delta.key());
+            writeVarLong(out, nodeIndex.get(delta.nodeId()));
+            out.writeLong(delta.expiresAt());
+            writeVarLong(out, delta.count());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Splits deltas into batches whose encoding never exceeds {@code maxFrameBytes}.
+     * Sizes are upper bounds, so frames may come out somewhat smaller.
+     */
+    static List<List<StateDelta>> split(List<StateDelta> deltas, int maxFrameBytes) {
+        List<List<StateDelta>> batches = new ArrayList<>();
+        List<StateDelta> batch = new ArrayList<>();
+        Set<String> nodeIds = new HashSet<>();
+        int size = MAX_HEADER_BYTES;
+
+        for (StateDelta delta : deltas) {
+            int deltaSize = MAX_DELTA_OVERHEAD_BYTES + utfLength(delta.key());
+            int nodeSize = nodeIds.contains(delta.nodeId()) ? 0 : 2 + utfLength(delta.nodeId());
+            if (!batch.isEmpty() && size + deltaSize + nodeSize > maxFrameBytes) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                nodeIds.clear();
+                size = MAX_HEADER_BYTES;
+                nodeSize = 2 + utfLength(delta.nodeId());
+            }
+            batch.add(delta);
+            nodeIds.add(delta.nodeId());
+            size += deltaSize + nodeSize;
+        }
+
+        if (!batch.isEmpty() || batches.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Length of the string in modified UTF-8, as written by {@link DataOutput#writeUTF}.
+     */
+    static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length += 1;
+            } else if (c <= 0x07FF) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    static List<StateDelta> decode(byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported delta frame version " + version);
+        }
+
+        int nodeCount = readCount(in, MIN_NODE_ID_BYTES);
+        List<String> nodeIds = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            nodeIds.add(in.readUTF());
+        }
+
+        int deltaCount = readCount(in, MIN_DELTA_BYTES);
+        List<StateDelta> deltas = new ArrayList<>();
+        StateDelta.Kind[] kinds = StateDelta.Kind.values();
+        for (int i = 0; i < deltaCount; i++) {
+            int kind = in.readUnsignedByte();
+            if (kind >= kinds.length) {
+                throw new IOException("Invalid delta kind " + kind);
+            }
+            String key = in.readUTF();
+            if (utfLength(key) > SharedState.MAX_KEY_BYTES) {
+                throw new IOException("Key exceeds " + SharedState.MAX_KEY_BYTES + " bytes");
+            }
+            long node = readVarLong(in);
+            if (node < 0 || node >= nodeCount) {
+                throw new IOException("Invalid node index " + node);
+            }
+            long expiresAt = in.readLong();
+            long count = readVarLong(in);
+            if (count < 0) {
+                throw new IOException("Invalid count " + count);
+            }
+            deltas.add(new StateDelta(kinds[kind], key, expiresAt, nodeIds.get((int) node), count));
+        }
+
+        if (in.available() > 0) {
+            throw new IOException("Trailing bytes after delta frame");
+        }
+        return deltas;
+    }
+
+    /**
+     * Reads an element count and rejects it unless the rest of the frame could
+     * hold that many elements of at least {@code minBytes} each.
+     */
+    private static int readCount(DataInputStream in, int minBytes) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0 || count > in.available() / minBytes) {
+            throw new IOException("Invalid element count " + count);
+        }
+        return (int) count;
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.oidc.state;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Discovers peers by resolving a headless Kubernetes service, which returns one
+ * A record per pod. The peer service sets {@code publishNotReadyAddresses}, so pods
+ * that are starting or failing readiness are included and can replicate before they
+ * take traffic. Addresses bound to this host are skipped.
+ */
+public class DnsPeerDiscovery implements PeerDiscovery {
+
+    private final String serviceName;
+    private final int port;
+
+    public DnsPeerDiscovery(String serviceName, int port) {
+        this.serviceName = serviceName;
+        this.port = port;
+    }
+
+    @Override
+    public Set<InetSocketAddress> peers() throws UnknownHostException {
+        Set<InetSocketAddress> peers = new HashSet<>();
+        for (InetAddress address : InetAddress.getAllByName(serviceName)) {
+            if (!isLocal(address)) {
+                peers.add(new InetSocketAddress(address, port));
+            }
+        }
+        return peers;
+    }
+
+    private boolean isLocal(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isAnyLocalAddress()) {
+            return true;
+        }
+        try {
+            return NetworkInterface.getByInetAddress(address) != null;
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.oidc.state;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * HMAC-SHA256 over each replication frame, keyed by a secret shared by all
+ * replicas. Frames from peers without the secret are rejected before decoding.
+ *
+ * Frames are not encrypted and can be replayed, which is harmless because
+ * merging is idempotent and expired deltas are ignored.
+ */
+final class FrameSigner {
+
+    static final int MAC_BYTES = 32;
+    static final int MIN_SECRET_BYTES = 32;
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+
+    FrameSigner(byte[] secret) {
+        if (secret == null || secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("Shared state secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    byte[] sign(byte[] frame) {
+        return macs.get().doFinal(frame);
+    }
+
+    boolean verify(byte[] frame, byte[] mac) {
+        return MessageDigest.isEqual(sign(frame), mac);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.oidc.state;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-process shared state for a single node. Marks and counters live in
+ * separate maps; each key holds one bucket per expiry (mark deadline or window
+ * end) with a per-node counter, so the same store can merge deltas from other
+ * replicas without losing local counts.
+ *
+ * Buckets are never replaced by later ones: a peer whose clock runs ahead and
+ * has already crossed a window boundary only adds to the next window's bucket.
+ * Clock skew therefore shifts at most the skewed peer's hits near a boundary
+ * into the adjacent window, and should stay well below the window length.
+ *
+ * Expired buckets are dropped when their key is next written, and a background
+ * task sweeps keys that are no longer written, so callers never pay for a sweep.
+ */
+public class LocalSharedState implements SharedState, AutoCloseable {
+
+    private static final long PURGE_INTERVAL_MILLIS = 1000;
+
+    private final String nodeId;
+    private final Clock clock;
+    private final Map<String, Entry> marks = new ConcurrentHashMap<>();
+    private final Map<String, Entry> counters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService purger;
+    private volatile Consumer<StateDelta> listener = delta -> { };
+
+    public LocalSharedState(String nodeId) {
+        this(nodeId, Clock.systemUTC());
+    }
+
+    public LocalSharedState(String nodeId, Clock clock) {
+        checkKey(nodeId);
+        this.nodeId = nodeId;
+        this.clock = clock;
+        this.purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shared-state-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(this::purgeExpired,
+            PURGE_INTERVAL_MILLIS, PURGE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public boolean markIfAbsent(String key, Duration ttl) {
+        checkKey(key);
+        checkDuration(ttl, "TTL");
+        long now = clock.millis();
+        long expiresAt = now + ttl.toMillis();
+        boolean[] added = {false};
+        marks.compute(key, (k, current) -> {
+            if (current != null && current.isLive(now)) {
+                return current;
+            }
+            added[0] = true;
+            return Entry.EMPTY.with(expiresAt, nodeId, 0L, now);
+        });
+
+        if (added[0]) {
+            listener.accept(new StateDelta(StateDelta.Kind.MARK, key, expiresAt, nodeId, 0L));
+        }
+        return added[0];
+    }
+
+    @Override
+    public boolean contains(String key) {
+        long now = clock.millis();
+        Entry entry = marks.get(key);
+        return entry != null && entry.isLive(now);
+    }
+
+    @Override
+    public long increment(String key, Duration window) {
+        checkKey(key);
+        long now = clock.millis();
+        long windowEnd = windowEnd(now, window);
+        long[] own = {0};
+
+        Entry entry = counters.compute(key, (k, current) -> {
+            Entry base = current != null ? current : Entry.EMPTY;
+            own[0] = base.count(windowEnd, nodeId) + 1;
+            return base.with(windowEnd, nodeId, own[0], now);
+        });
+
+        listener.accept(new StateDelta(StateDelta.Kind.COUNTER, key, windowEnd, nodeId, own[0]));
+        return entry.total(windowEnd);
+    }
+
+    @Override
+    public long count(String key, Duration window) {
+        long windowEnd = windowEnd(clock.millis(), window);
+        Entry entry = counters.get(key);
+        return entry != null ? entry.total(windowEnd) : 0L;
+    }
+
+    /**
+     * Merges a delta received from another replica. Merging is idempotent and
+     * order-independent: each node's counter in a bucket keeps its highest value.
+     */
+    void apply(StateDelta delta) {
+        long now = clock.millis();
+        if (delta.expiresAt() <= now) {
+            return;
+        }
+        Map<String, Entry> entries = delta.kind() == StateDelta.Kind.MARK ? marks : counters;
+        entries.compute(delta.key(), (k, current) -> {
+            Entry base = current != null ? current : Entry.EMPTY;
+            if (base.has(delta.expiresAt(), delta.nodeId())
+                    && base.count(delta.expiresAt(), delta.nodeId()) >= delta.count()) {
+                return current;
+            }
+            return base.with(delta.expiresAt(), delta.nodeId(), delta.count(), now);
+        });
+    }
+
+    /**
+     * Returns every live per-node counter, used to bring a newly connected peer up to date.
+     */
+    List<StateDelta> snapshot() {
+        long now = clock.millis();
+        List<StateDelta> deltas = new ArrayList<>();
+        addLive(deltas, StateDelta.Kind.MARK, marks, now);
+        addLive(deltas, StateDelta.Kind.COUNTER, counters, now);
+        return deltas;
+    }
+
+    private static void addLive(List<StateDelta> deltas, StateDelta.Kind kind, Map<String, Entry> entries, long now) {
+        entries.forEach((key, entry) -> entry.buckets().forEach((expiresAt, counts) -> {
+            if (expiresAt > now) {
+                counts.forEach((node, count) -> deltas.add(new StateDelta(kind, key, expiresAt, node, count)));
+            }
+        }));
+    }
+
+    @Override
+    public void close() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * Removes expired buckets, and keys left without any live bucket.
+     */
+    void purgeExpired() {
+        long now = clock.millis();
+        for (Map<String, Entry> entries : List.of(marks, counters)) {
+            entries.replaceAll((key, entry) -> entry.withoutExpired(now));
+            entries.values().removeIf(entry -> entry.buckets().isEmpty());
+        }
+    }
+
+    int size() {
+        return marks.size() + counters.size();
+    }
+
+    void setListener(Consumer<StateDelta> listener) {
+        this.listener = listener;
+    }
+
+    private static void checkKey(String key) {
+        if (DeltaCodec.utfLength(key) > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException("Key exceeds " + MAX_KEY_BYTES + " bytes");
+        }
+    }
+
+    private static void checkDuration(Duration duration, String name) {
+        if (duration.toMillis() < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1ms, was " + duration);
+        }
+    }
+
+    private static long windowEnd(long now, Duration window) {
+        checkDuration(window, "Window");
+        long windowMillis = window.toMillis();
+        return (now / windowMillis + 1) * windowMillis;
+    }
+
+    /**
+     * Immutable buckets for one key, from expiry (epoch millis) to per-node counts.
+     */
+    private record Entry(Map<Long, Map<String, Long>> buckets) {
+
+        static final Entry EMPTY = new Entry(Map.of());
+
+        boolean isLive(long now) {
+            return buckets.keySet().stream().anyMatch(expiresAt -> expiresAt > now);
+        }
+
+        boolean has(long expiresAt, String node) {
+            Map<String, Long> counts = buckets.get(expiresAt);
+            return counts != null && counts.containsKey(node);
+        }
+
+        long count(long expiresAt, String node) {
+            return buckets.getOrDefault(expiresAt, Map.of()).getOrDefault(node, 0L);
+        }
+
+        long total(long expiresAt) {
+            return buckets.getOrDefault(expiresAt, Map.of()).values().stream()
+                .mapToLong(Long::longValue).sum();
+        }
+
+        Entry with(long expiresAt, String node, long count, long now) {
+            Map<Long, Map<String, Long>> updated = new HashMap<>();
+            buckets.forEach((bucket, counts) -> {
+                if (bucket > now) {
+                    updated.put(bucket, counts);
+                }
+            });
+            Map<String, Long> counts = new HashMap<>(updated.getOrDefault(expiresAt, Map.of()));
+            counts.put(node, count);
+            updated.put(expiresAt, Map.copyOf(counts));
+            return new Entry(Map.copyOf(updated));
+        }
+
+        Entry withoutExpired(long now) {
+            if (buckets.keySet().stream().allMatch(expiresAt -> expiresAt > now)) {
+                return this;
+            }
+            Map<Long, Map<String, Long>> live = new HashMap<>(buckets);
+            live.keySet().removeIf(expiresAt -> expiresAt <= now);
+            return new Entry(Map.copyOf(live));
+        }
+    }
+}
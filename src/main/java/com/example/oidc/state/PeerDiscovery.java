@@ -0,0 +1,22 @@
+package com.example.oidc.state;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Supplies the replication addresses of the other replicas, excluding this one.
+ * Implementations throw when the peer set cannot be determined, so callers keep
+ * the last known peers rather than treating a lookup failure as an empty cluster.
+ */
+@FunctionalInterface
+public interface PeerDiscovery {
+
+    Set<InetSocketAddress> peers() throws IOException;
+
+    static PeerDiscovery fixed(List<InetSocketAddress> peers) {
+        Set<InetSocketAddress> copy = Set.copyOf(peers);
+        return () -> copy;
+    }
+}
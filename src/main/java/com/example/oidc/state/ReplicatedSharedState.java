@@ -0,0 +1,396 @@
+package com.example.oidc.state;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared state replicated peer-to-peer between all replicas.
+ *
+ * Local changes are applied immediately and coalesced per key and bucket; every flush
+ * interval the pending deltas are handed to each peer and sent as one batch over a
+ * persistent TCP connection. Every frame carries an HMAC keyed by a secret shared
+ * by the replicas, and unauthenticated frames drop the connection. When a connection is (re)established the full
+ * local state is sent first, so a restarted or newly scaled replica converges
+ * without a separate anti-entropy pass.
+ *
+ * Each peer connects and writes on its own thread, so an unreachable or slow
+ * peer only delays its own updates. A frame that cannot be written within the
+ * peer timeout closes the connection, which resynchronises once the peer recovers.
+ * Inbound connections that stay silent for the peer timeout are dropped too.
+ *
+ * At most {@code maxPeers} inbound connections are served at once, each on a
+ * thread from a pool of that size, so unauthenticated connections can hold at
+ * most {@code maxPeers} threads and frame buffers before their first HMAC check.
+ */
+@Slf4j
+public class ReplicatedSharedState implements SharedState, AutoCloseable {
+
+    private static final int MAX_FRAME_BYTES = 1 << 20;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_BACKOFF_MILLIS = 1000;
+    private static final int PEER_TIMEOUT_INTERVALS = 3;
+
+    private final LocalSharedState store;
+    private final FrameSigner signer;
+    private final PeerDiscovery discovery;
+    private final long discoveryIntervalMillis;
+    private final long peerTimeoutMillis;
+    private final ServerSocket server;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService readers;
+    private final Semaphore inboundSlots;
+    private final Thread acceptor;
+    private final ThreadFactory peerThreads = daemonThreads("shared-state-peer");
+    private final Map<BucketKey, StateDelta> pending = new ConcurrentHashMap<>();
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+
+    // Only accessed from the scheduler thread
+    private final Map<InetSocketAddress, PeerLink> links = new HashMap<>();
+    private long lastDiscovery;
+
+    private volatile boolean closed;
+
+    public ReplicatedSharedState(String nodeId, int port, byte[] secret, PeerDiscovery discovery, int maxPeers,
+                                 Duration flushInterval, Duration discoveryInterval) throws IOException {
+        if (flushInterval.toMillis() < 1 || discoveryInterval.toMillis() < 1) {
+            throw new IllegalArgumentException("Flush and discovery intervals must be at least 1ms");
+        }
+        if (maxPeers < 1) {
+            throw new IllegalArgumentException("maxPeers must be at least 1");
+        }
+        this.signer = new FrameSigner(secret);
+        this.store = new LocalSharedState(nodeId);
+        this.discovery = discovery;
+        this.discoveryIntervalMillis = discoveryInterval.toMillis();
+        this.peerTimeoutMillis = PEER_TIMEOUT_INTERVALS * discoveryIntervalMillis;
+        this.server = new ServerSocket();
+        this.server.setReuseAddress(true);
+        this.server.bind(new InetSocketAddress(port));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("shared-state-flush"));
+        this.readers = Executors.newFixedThreadPool(maxPeers, daemonThreads("shared-state-io"));
+        this.inboundSlots = new Semaphore(maxPeers);
+        this.acceptor = daemonThreads("shared-state-accept").newThread(this::acceptLoop);
+
+        store.setListener(delta ->
+            pending.merge(new BucketKey(delta.kind(), delta.key(), delta.expiresAt()), delta, StateDelta::latest));
+        acceptor.start();
+        scheduler.scheduleWithFixedDelay(this::flush, 0, flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        log.info("Shared state replication started - Node: {}, Port: {}", nodeId, getPort());
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    @Override
+    public boolean markIfAbsent(String key, Duration ttl) {
+        return store.markIfAbsent(key, ttl);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return store.contains(key);
+    }
+
+    @Override
+    public long increment(String key, Duration window) {
+        return store.increment(key, window);
+    }
+
+    @Override
+    public long count(String key, Duration window) {
+        return store.count(key, window);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        links.values().forEach(PeerLink::close);
+        links.clear();
+        closeQuietly(server);
+        inbound.forEach(ReplicatedSharedState::closeQuietly);
+        readers.shutdownNow();
+        store.close();
+    }
+
+    private void flush() {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - lastDiscovery >= discoveryIntervalMillis) {
+                refreshPeers();
+                lastDiscovery = now;
+            }
+
+            List<StateDelta> batch = drain(pending);
+            for (PeerLink link : links.values()) {
+                link.offer(batch, now);
+            }
+        } catch (RuntimeException e) {
+            // Never let an exception cancel the scheduled flush
+            log.warn("Shared state flush failed", e);
+        }
+    }
+
+    private void refreshPeers() {
+        Set<InetSocketAddress> peers;
+        try {
+            peers = discovery.peers();
+        } catch (IOException e) {
+            log.warn("Shared state peer discovery failed, keeping {} known peers: {}", links.size(), e.getMessage());
+            return;
+        }
+        links.entrySet().removeIf(entry -> {
+            if (peers.contains(entry.getKey())) {
+                return false;
+            }
+            log.info("Shared state peer removed - Address: {}", entry.getKey());
+            entry.getValue().close();
+            return true;
+        });
+        for (InetSocketAddress peer : peers) {
+            links.computeIfAbsent(peer, address -> {
+                log.info("Shared state peer discovered - Address: {}", address);
+                return new PeerLink(address);
+            });
+        }
+    }
+
+    private static List<StateDelta> drain(Map<BucketKey, StateDelta> deltas) {
+        List<StateDelta> batch = new ArrayList<>(deltas.size());
+        for (BucketKey key : deltas.keySet()) {
+            StateDelta delta = deltas.remove(key);
+            if (delta != null) {
+                batch.add(delta);
+            }
+        }
+        return batch;
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                if (!inboundSlots.tryAcquire()) {
+                    log.debug("Shared state connection from {} refused, {} peers already connected",
+                        socket.getRemoteSocketAddress(), inbound.size());
+                    closeQuietly(socket);
+                    continue;
+                }
+                inbound.add(socket);
+                readers.execute(() -> readLoop(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("Shared state accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            // Senders write at least once per discovery interval, so silence means a dead peer
+            socket.setSoTimeout((int) peerTimeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (!closed) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                byte[] mac = new byte[FrameSigner.MAC_BYTES];
+                in.readFully(mac);
+                if (!signer.verify(frame, mac)) {
+                    log.warn("Shared state frame from {} failed authentication, closing connection",
+                        socket.getRemoteSocketAddress());
+                    return;
+                }
+                for (StateDelta delta : DeltaCodec.decode(frame)) {
+                    store.apply(delta);
+                }
+            }
+        } catch (EOFException e) {
+            // Peer closed the connection
+        } catch (IOException e) {
+            if (!closed) {
+                log.debug("Shared state connection from {} dropped: {}",
+                    socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        } finally {
+            inbound.remove(socket);
+            closeQuietly(socket);
+            inboundSlots.release();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // Ignore, the resource is being discarded
+        }
+    }
+
+    private record BucketKey(StateDelta.Kind kind, String key, long expiresAt) {
+    }
+
+    /**
+     * Outbound connection to one peer, driven by its own single-thread executor.
+     * Deltas offered while a write is in progress are coalesced and sent next.
+     * Empty frames are sent once per discovery interval while idle so a
+     * restarted peer is detected and resynchronised.
+     */
+    private class PeerLink {
+
+        private final InetSocketAddress address;
+        private final ExecutorService executor;
+        private final Map<BucketKey, StateDelta> queued = new ConcurrentHashMap<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile Socket socket;
+        private volatile boolean closed;
+        private volatile long frameStartedAt;
+        private volatile long lastWrite;
+
+        // Only accessed from the link's executor
+        private DataOutputStream out;
+        private long retryAt;
+
+        PeerLink(InetSocketAddress address) {
+            this.address = address;
+            this.executor = Executors.newSingleThreadExecutor(peerThreads);
+        }
+
+        void offer(List<StateDelta> batch, long now) {
+            for (StateDelta delta : batch) {
+                queued.merge(new BucketKey(delta.kind(), delta.key(), delta.expiresAt()), delta, StateDelta::latest);
+            }
+
+            long startedAt = frameStartedAt;
+            if (startedAt != 0 && now - startedAt > peerTimeoutMillis) {
+                log.warn("Shared state peer {} stalled for {}ms, closing connection", address, now - startedAt);
+                closeQuietly(socket);
+            }
+
+            boolean due = !queued.isEmpty() || socket == null || now - lastWrite >= discoveryIntervalMillis;
+            if (due && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::send);
+            }
+        }
+
+        void close() {
+            closed = true;
+            executor.shutdownNow();
+            // Unblocks a pending connect or write; the executor thread then exits
+            closeQuietly(socket);
+        }
+
+        private void send() {
+            long now = System.currentTimeMillis();
+            if (closed) {
+                return;
+            }
+            try {
+                if (socket == null) {
+                    if (now < retryAt) {
+                        return;
+                    }
+                    connect();
+                    // The snapshot already includes everything queued so far
+                    queued.clear();
+                    write(store.snapshot(), now);
+                } else {
+                    write(drain(queued), now);
+                }
+            } catch (IOException e) {
+                log.debug("Shared state peer {} unavailable: {}", address, e.getMessage());
+                disconnect();
+                retryAt = now + RECONNECT_BACKOFF_MILLIS;
+            } finally {
+                scheduled.set(false);
+            }
+        }
+
+        private void connect() throws IOException {
+            Socket connecting = new Socket();
+            socket = connecting;
+            // close() sets the flag before closing the socket, so either it sees this
+            // socket or this check sees the flag
+            if (closed) {
+                closeQuietly(connecting);
+                throw new IOException("Peer link closed");
+            }
+            connecting.setTcpNoDelay(true);
+            connecting.connect(address, CONNECT_TIMEOUT_MILLIS);
+            out = new DataOutputStream(new BufferedOutputStream(connecting.getOutputStream()));
+        }
+
+        private void write(List<StateDelta> deltas, long now) throws IOException {
+            try {
+                for (List<StateDelta> batch : DeltaCodec.split(deltas, MAX_FRAME_BYTES)) {
+                    byte[] frame = DeltaCodec.encode(batch);
+                    frameStartedAt = System.currentTimeMillis();
+                    out.writeInt(frame.length);
+                    out.write(frame);
+                    out.write(signer.sign(frame));
+                    out.flush();
+                }
+                lastWrite = now;
+            } finally {
+                frameStartedAt = 0;
+            }
+        }
+
+        private void disconnect() {
+            Socket current = socket;
+            if (current != null) {
+                closeQuietly(current);
+            }
+            socket = null;
+            out = null;
+        }
+    }
+}
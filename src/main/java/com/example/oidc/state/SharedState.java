@@ -0,0 +1,49 @@
+package com.example.oidc.state;
+
+import java.time.Duration;
+
+/**
+ * Decision state shared by every replica of the service, such as seen-token
+ * tracking, duplicate-request suppression and rate-limit counters.
+ *
+ * Marks and counters are independent namespaces: incrementing a key never makes
+ * it count as marked, and marking a key never changes its counter.
+ *
+ * Replicated implementations converge asynchronously, so two replicas may both
+ * observe a key as absent if they record it within the same replication interval.
+ */
+public interface SharedState {
+
+    /**
+     * Longest accepted key, in modified UTF-8 bytes as written on the wire.
+     */
+    int MAX_KEY_BYTES = 1024;
+
+    /**
+     * Records the key until the TTL elapses.
+     *
+     * @return true if the key was not already recorded, false if it was seen before
+     * @throws IllegalArgumentException if the key is longer than {@link #MAX_KEY_BYTES},
+     *         or the TTL is shorter than one millisecond
+     */
+    boolean markIfAbsent(String key, Duration ttl);
+
+    boolean contains(String key);
+
+    /**
+     * Increments the counter for the key within a fixed window of the given length.
+     * Windows are aligned to the epoch so every replica agrees on their boundaries,
+     * provided replica clocks are in sync to well within the window length.
+     *
+     * @return the counter total across all replicas for the current window
+     * @throws IllegalArgumentException if the key is longer than {@link #MAX_KEY_BYTES},
+     *         or the window is shorter than one millisecond
+     */
+    long increment(String key, Duration window);
+
+    /**
+     * @return the counter total across all replicas for the current window
+     * @throws IllegalArgumentException if the window is shorter than one millisecond
+     */
+    long count(String key, Duration window);
+}
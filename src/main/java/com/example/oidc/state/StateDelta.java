@@ -0,0 +1,24 @@
+package com.example.oidc.state;
+
+/**
+ * A single replicated change: the count contributed by one node to one mark or
+ * counter key, valid until {@code expiresAt} (epoch millis).
+ */
+public record StateDelta(Kind kind, String key, long expiresAt, String nodeId, long count) {
+
+    /**
+     * Marks and counters are separate namespaces, so the same key can be used by both.
+     */
+    public enum Kind {
+        MARK,
+        COUNTER
+    }
+
+    /**
+     * Returns whichever of two deltas for the same kind, key, node and bucket supersedes
+     * the other. The higher count wins, since per-node counts only grow within a bucket.
+     */
+    static StateDelta latest(StateDelta a, StateDelta b) {
+        return a.count >= b.count ? a : b;
+    }
+}
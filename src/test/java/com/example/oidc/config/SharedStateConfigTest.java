@@ -0,0 +1,36 @@
+package com.example.oidc.config;
+
+import com.example.oidc.model.SharedStateProperties;
+import com.example.oidc.state.LocalSharedState;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedStateConfigTest {
+
+    @Test
+    void testSharedState_nodeIdUniquePerProcess() throws Exception {
+        SharedStateProperties properties = new SharedStateProperties();
+        properties.setNodeId("oidc-validator-7d9f8c6b5-x2x4q");
+
+        SharedStateConfig config = new SharedStateConfig();
+        LocalSharedState first = (LocalSharedState) config.sharedState(properties);
+        LocalSharedState restarted = (LocalSharedState) config.sharedState(properties);
+
+        assertTrue(first.getNodeId().startsWith("oidc-validator-7d9f8c6b5-x2x4q-"));
+        assertNotEquals(first.getNodeId(), restarted.getNodeId());
+    }
+
+    @Test
+    void testSharedState_replicatedRejectsZeroFlushInterval() {
+        SharedStateProperties properties = new SharedStateProperties();
+        properties.setMode(SharedStateProperties.Mode.REPLICATED);
+        properties.setPeerService("oidc-validator-peers");
+        properties.setSecret("test-secret-shared-by-all-replicas");
+        properties.setFlushInterval(Duration.ZERO);
+
+        assertThrows(IllegalStateException.class, () -> new SharedStateConfig().sharedState(properties));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.oidc.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaCodecTest {
+
+    @Test
+    void testEncode_decodeRoundTrip() throws IOException {
+        List<StateDelta> deltas = List.of(
+            new StateDelta(StateDelta.Kind.MARK, "jti:abc", 1_700_000_000_000L, "node-a", 0),
+            new StateDelta(StateDelta.Kind.COUNTER, "rate:myorg/platform", 1_700_000_060_000L, "node-b", 300),
+            new StateDelta(StateDelta.Kind.MARK, "rate:myorg/platform", 1_700_000_060_000L, "node-b", 0),
+            new StateDelta(StateDelta.Kind.COUNTER, "rate:myorg/services", 1_700_000_060_000L, "node-a", Long.MAX_VALUE)
+        );
+
+        assertEquals(deltas, DeltaCodec.decode(DeltaCodec.encode(deltas)));
+        assertEquals(List.of(), DeltaCodec.decode(DeltaCodec.encode(List.of())));
+    }
+
+    @Test
+    void testSplit_keepsFramesUnderLimit() throws IOException {
+        List<StateDelta> deltas = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String key = ("jti:" + i + ":" + "\u00e9".repeat(400)).substring(0, 300);
+            deltas.add(new StateDelta(i % 2 == 0 ? StateDelta.Kind.MARK : StateDelta.Kind.COUNTER, key, 1_700_000_000_000L + i, "node-" + (i % 3), i));
+        }
+
+        List<StateDelta> decoded = new ArrayList<>();
+        List<List<StateDelta>> batches = DeltaCodec.split(deltas, 4096);
+        for (List<StateDelta> batch : batches) {
+            byte[] frame = DeltaCodec.encode(batch);
+            assertTrue(frame.length <= 4096, "Frame of " + frame.length + " bytes");
+            decoded.addAll(DeltaCodec.decode(frame));
+        }
+
+        assertTrue(batches.size() > 1);
+        assertEquals(deltas, decoded);
+    }
+
+    @Test
+    void testDecode_rejectsHostileFrames() {
+        byte[][] frames = {
+            {},
+            {3, 0, 0},
+            // Node count far larger than the frame
+            {2, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+            // Node count that overflows to a negative int
+            {2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F},
+            // Varint longer than 64 bits
+            {2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01},
+            // One delta referencing a node index outside the table
+            {2, 0, 1, 0, 0, 1, 'k', 3, 0, 0, 0, 0, 0, 0, 0, 1, 1},
+            // One delta with an unknown kind
+            {2, 1, 0, 1, 'n', 1, 7, 0, 1, 'k', 0, 0, 0, 0, 0, 0, 0, 0, 1, 1},
+            // One delta with a negative count
+            {2, 1, 0, 1, 'n', 1, 1, 0, 1, 'k', 0, 0, 0, 0, 0, 0, 0, 0, 1, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01},
+            // Valid empty frame followed by trailing bytes
+            {2, 0, 0, 0}
+        };
+
+        for (byte[] frame : frames) {
+            assertThrows(IOException.class, () -> DeltaCodec.decode(frame));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.oidc.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DnsPeerDiscoveryTest {
+
+    private static final int PORT = 7946;
+
+    @Test
+    void testPeers_skipsLoopbackAddresses() throws Exception {
+        assertEquals(Set.of(), new DnsPeerDiscovery("127.0.0.1", PORT).peers());
+        assertEquals(Set.of(), new DnsPeerDiscovery("::1", PORT).peers());
+        assertEquals(Set.of(), new DnsPeerDiscovery("0.0.0.0", PORT).peers());
+    }
+
+    @Test
+    void testPeers_skipsAddressesOfThisHost() throws Exception {
+        String local = InetAddress.getLocalHost().getHostAddress();
+
+        assertEquals(Set.of(), new DnsPeerDiscovery(local, PORT).peers());
+    }
+
+    @Test
+    void testPeers_returnsRemoteAddressesWithPort() throws Exception {
+        // TEST-NET-1, never assigned to a real interface
+        Set<InetSocketAddress> peers = new DnsPeerDiscovery("192.0.2.10", PORT).peers();
+
+        assertEquals(Set.of(new InetSocketAddress(InetAddress.getByName("192.0.2.10"), PORT)), peers);
+    }
+
+    @Test
+    void testPeers_unresolvableServiceThrows() {
+        assertThrows(UnknownHostException.class, () -> new DnsPeerDiscovery("peers.invalid", PORT).peers());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.oidc.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameSignerTest {
+
+    private static final byte[] SECRET = "test-secret-shared-by-all-replicas".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testSign_verifiesWithSameSecret() {
+        byte[] frame = {2, 0, 0};
+        byte[] mac = new FrameSigner(SECRET).sign(frame);
+
+        assertEquals(FrameSigner.MAC_BYTES, mac.length);
+        assertTrue(new FrameSigner(SECRET.clone()).verify(frame, mac));
+    }
+
+    @Test
+    void testVerify_rejectsTamperedFrame() {
+        FrameSigner signer = new FrameSigner(SECRET);
+        byte[] frame = {2, 0, 0};
+        byte[] mac = signer.sign(frame);
+
+        assertFalse(signer.verify(new byte[]{2, 0, 1}, mac));
+    }
+
+    @Test
+    void testVerify_rejectsOtherSecret() {
+        byte[] frame = {2, 0, 0};
+        byte[] otherSecret = "another-secret-of-at-least-32-bytes".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(new FrameSigner(SECRET).verify(frame, new FrameSigner(otherSecret).sign(frame)));
+    }
+
+    @Test
+    void testShortSecret_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameSigner(new byte[FrameSigner.MIN_SECRET_BYTES - 1]));
+        assertThrows(IllegalArgumentException.class, () -> new FrameSigner(null));
+    }
+}
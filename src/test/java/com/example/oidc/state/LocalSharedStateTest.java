@@ -0,0 +1,204 @@
+package com.example.oidc.state;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalSharedStateTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+    private static final long WINDOW_START = 1_700_000_040_000L;
+
+    private MutableClock clock;
+    private LocalSharedState state;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(WINDOW_START + 30_000);
+        state = new LocalSharedState("node-a", clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        state.close();
+    }
+
+    @Test
+    void testMarkIfAbsent_expiresAfterTtl() {
+        assertTrue(state.markIfAbsent("jti:token-1", Duration.ofSeconds(10)));
+        assertFalse(state.markIfAbsent("jti:token-1", Duration.ofSeconds(10)));
+        assertTrue(state.contains("jti:token-1"));
+
+        clock.advance(Duration.ofSeconds(10));
+
+        assertFalse(state.contains("jti:token-1"));
+        assertTrue(state.markIfAbsent("jti:token-1", Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void testIncrement_rollsOverAtWindowBoundary() {
+        assertEquals(1, state.increment("rate:myorg/platform", WINDOW));
+        assertEquals(2, state.increment("rate:myorg/platform", WINDOW));
+
+        clock.advance(Duration.ofSeconds(29));
+        assertEquals(3, state.increment("rate:myorg/platform", WINDOW));
+
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(0, state.count("rate:myorg/platform", WINDOW));
+        assertEquals(1, state.increment("rate:myorg/platform", WINDOW));
+    }
+
+    @Test
+    void testCounterKey_doesNotAffectMarks() {
+        state.increment("shared-key", WINDOW);
+
+        assertFalse(state.contains("shared-key"));
+        assertTrue(state.markIfAbsent("shared-key", Duration.ofSeconds(10)));
+        assertEquals(1, state.count("shared-key", WINDOW));
+        assertEquals(2, state.increment("shared-key", WINDOW));
+    }
+
+    @Test
+    void testApply_keepsMarksAndCountersApart() {
+        state.apply(new StateDelta(StateDelta.Kind.COUNTER, "shared-key", WINDOW_START + WINDOW.toMillis(), "node-b", 3));
+        assertFalse(state.contains("shared-key"));
+
+        state.apply(new StateDelta(StateDelta.Kind.MARK, "shared-key", clock.millis() + 10_000, "node-b", 0));
+        assertTrue(state.contains("shared-key"));
+        assertEquals(3, state.count("shared-key", WINDOW));
+    }
+
+    @Test
+    void testPurgeExpired_removesExpiredKeys() {
+        state.markIfAbsent("jti:token-1", Duration.ofSeconds(10));
+        state.markIfAbsent("jti:token-2", Duration.ofMinutes(5));
+        state.increment("rate:myorg/platform", WINDOW);
+
+        clock.advance(WINDOW);
+        state.purgeExpired();
+
+        assertEquals(1, state.size());
+        assertTrue(state.contains("jti:token-2"));
+    }
+
+    @Test
+    void testOversizedKey_rejected() {
+        String atLimit = "k".repeat(SharedState.MAX_KEY_BYTES);
+        String overLimit = "\u00e9".repeat(SharedState.MAX_KEY_BYTES / 2 + 1);
+
+        assertTrue(state.markIfAbsent(atLimit, Duration.ofSeconds(10)));
+        assertThrows(IllegalArgumentException.class, () -> state.markIfAbsent(overLimit, Duration.ofSeconds(10)));
+        assertThrows(IllegalArgumentException.class, () -> state.increment(overLimit, WINDOW));
+    }
+
+    @Test
+    void testSubMillisecondDurations_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> state.markIfAbsent("jti:token-1", Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> state.increment("rate:myorg/platform", Duration.ofNanos(999_999)));
+        assertThrows(IllegalArgumentException.class, () -> state.count("rate:myorg/platform", Duration.ofSeconds(-1)));
+    }
+
+    @Test
+    void testApply_isIdempotent() {
+        StateDelta delta = new StateDelta(StateDelta.Kind.COUNTER, "rate:myorg/platform", WINDOW_START + WINDOW.toMillis(), "node-b", 4);
+
+        state.apply(delta);
+        state.apply(delta);
+
+        assertEquals(4, state.count("rate:myorg/platform", WINDOW));
+        assertEquals(5, state.increment("rate:myorg/platform", WINDOW));
+    }
+
+    @Test
+    void testApply_outOfOrderKeepsHighestCount() {
+        long windowEnd = WINDOW_START + WINDOW.toMillis();
+
+        state.apply(new StateDelta(StateDelta.Kind.COUNTER, "rate:myorg/platform", windowEnd, "node-b", 7));
+        state.apply(new StateDelta(StateDelta.Kind.COUNTER, "rate:myorg/platform", windowEnd, "node-b", 3));
+        state.apply(new StateDelta(StateDelta.Kind.COUNTER, "rate:myorg/platform", windowEnd, "node-c", 2));
+
+        assertEquals(9, state.count("rate:myorg/platform", WINDOW));
+    }
+
+    @Test
+    void testApply_expiredDeltaIgnored() {
+        state.apply(new StateDelta(StateDelta.Kind.MARK, "jti:token-1", clock.millis(), "node-b", 0));
+
+        assertFalse(state.contains("jti:token-1"));
+        assertTrue(state.snapshot().isEmpty());
+    }
+
+    @Test
+    void testApply_markFromPeerIsSeen() {
+        state.apply(new StateDelta(StateDelta.Kind.MARK, "jti:token-1", clock.millis() + 10_000, "node-b", 0));
+
+        assertTrue(state.contains("jti:token-1"));
+        assertFalse(state.markIfAbsent("jti:token-1", Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void testStateDelta_latestPrefersHigherCount() {
+        StateDelta lower = new StateDelta(StateDelta.Kind.COUNTER, "rate:myorg/platform", WINDOW_START, "node-a", 3);
+        StateDelta higher = new StateDelta(StateDelta.Kind.COUNTER, "rate:myorg/platform", WINDOW_START, "node-a", 5);
+
+        assertSame(higher, StateDelta.latest(lower, higher));
+        assertSame(higher, StateDelta.latest(higher, lower));
+    }
+
+    @Test
+    void testApply_peerAheadInNextWindow_keepsCurrentWindow() {
+        state.increment("rate:myorg/platform", WINDOW);
+        state.increment("rate:myorg/platform", WINDOW);
+
+        // Peer clock already past the boundary reports a count for the next window
+        state.apply(new StateDelta(StateDelta.Kind.COUNTER, "rate:myorg/platform", WINDOW_START + 2 * WINDOW.toMillis(), "node-b", 5));
+
+        assertEquals(2, state.count("rate:myorg/platform", WINDOW));
+        assertEquals(3, state.increment("rate:myorg/platform", WINDOW));
+
+        clock.advance(WINDOW);
+        assertEquals(5, state.count("rate:myorg/platform", WINDOW));
+        assertEquals(6, state.increment("rate:myorg/platform", WINDOW));
+    }
+
+    static class MutableClock extends Clock {
+
+        private volatile long millis;
+
+        MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        void advance(Duration duration) {
+            millis += duration.toMillis();
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.oidc.state;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicatedSharedStateTest {
+
+    private static final Duration FLUSH_INTERVAL = Duration.ofMillis(10);
+    private static final Duration DISCOVERY_INTERVAL = Duration.ofMillis(100);
+    private static final Duration WINDOW = Duration.ofHours(1);
+    private static final long CONVERGENCE_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_PEERS = 8;
+    private static final byte[] SECRET = "test-secret-shared-by-all-replicas".getBytes(StandardCharsets.UTF_8);
+
+    private final List<ReplicatedSharedState> nodes = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean discoveryFailing = new AtomicBoolean();
+    private final List<InetSocketAddress> extraPeers = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ReplicatedSharedState::close);
+    }
+
+    @Test
+    void testMarkIfAbsent_convergesAcrossNodes() throws Exception {
+        startNodes(3);
+
+        assertTrue(nodes.get(0).markIfAbsent("jti:token-1", Duration.ofMinutes(5)));
+        awaitTrue(() -> nodes.stream().allMatch(node -> node.contains("jti:token-1")));
+
+        assertFalse(nodes.get(1).markIfAbsent("jti:token-1", Duration.ofMinutes(5)));
+        assertFalse(nodes.get(2).markIfAbsent("jti:token-1", Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void testIncrement_convergesToClusterTotal() throws Exception {
+        startNodes(3);
+
+        for (int i = 0; i < 100; i++) {
+            nodes.get(i % nodes.size()).increment("rate:myorg/platform", WINDOW);
+        }
+
+        awaitTrue(() -> nodes.stream().allMatch(node -> node.count("rate:myorg/platform", WINDOW) == 100));
+    }
+
+    @Test
+    void testLateJoiner_receivesExistingState() throws Exception {
+        startNodes(2);
+        nodes.get(0).markIfAbsent("jti:token-1", Duration.ofMinutes(5));
+        nodes.get(1).increment("rate:myorg/platform", WINDOW);
+
+        ReplicatedSharedState joiner = startNode(2);
+
+        awaitTrue(() -> joiner.contains("jti:token-1") && joiner.count("rate:myorg/platform", WINDOW) == 1);
+    }
+
+    @Test
+    void testDiscoveryFailure_keepsKnownPeers() throws Exception {
+        startNodes(3);
+        awaitConnected();
+
+        discoveryFailing.set(true);
+        Thread.sleep(3 * DISCOVERY_INTERVAL.toMillis());
+
+        nodes.get(0).markIfAbsent("jti:token-1", Duration.ofMinutes(5));
+        awaitTrue(() -> nodes.stream().allMatch(node -> node.contains("jti:token-1")));
+    }
+
+    @Test
+    void testStalledPeer_doesNotDelayHealthyPeers() throws Exception {
+        // Accepts connections but never reads, so writes block once socket buffers fill
+        try (ServerSocket stalled = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            List<Socket> accepted = new CopyOnWriteArrayList<>();
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        accepted.add(stalled.accept());
+                    }
+                } catch (IOException e) {
+                    // Server socket closed
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            extraPeers.add(new InetSocketAddress("127.0.0.1", stalled.getLocalPort()));
+            startNodes(2);
+            awaitConnected();
+
+            String padding = "x".repeat(SharedState.MAX_KEY_BYTES - 16);
+            for (int i = 0; i < 20_000; i++) {
+                nodes.get(0).markIfAbsent(padding + i, Duration.ofMinutes(5));
+            }
+
+            nodes.get(0).markIfAbsent("jti:token-1", Duration.ofMinutes(5));
+            awaitTrue(() -> nodes.get(1).contains("jti:token-1"));
+
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void testUnauthenticatedFrames_rejected() throws Exception {
+        ReplicatedSharedState node = startNode(0);
+        byte[] otherSecret = "some-other-secret-not-shared-with-peers".getBytes(StandardCharsets.UTF_8);
+
+        try (ReplicatedSharedState intruder = new ReplicatedSharedState("intruder", 0, otherSecret,
+                () -> Set.of(new InetSocketAddress("127.0.0.1", node.getPort())), MAX_PEERS,
+                FLUSH_INTERVAL, DISCOVERY_INTERVAL)) {
+            intruder.markIfAbsent("jti:token-1", Duration.ofMinutes(5));
+            intruder.increment("rate:myorg/platform", WINDOW);
+
+            // Forged frame with a valid encoding but no valid HMAC
+            try (Socket forged = new Socket(InetAddress.getLoopbackAddress(), node.getPort())) {
+                byte[] frame = DeltaCodec.encode(List.of(
+                    new StateDelta(StateDelta.Kind.MARK, "jti:token-2", System.currentTimeMillis() + 60_000, "intruder", 0)));
+                DataOutputStream out = new DataOutputStream(forged.getOutputStream());
+                out.writeInt(frame.length);
+                out.write(frame);
+                out.write(new byte[FrameSigner.MAC_BYTES]);
+                out.flush();
+
+                forged.setSoTimeout((int) CONVERGENCE_TIMEOUT_MILLIS);
+                assertEquals(-1, forged.getInputStream().read());
+            }
+
+            Thread.sleep(5 * FLUSH_INTERVAL.toMillis() + DISCOVERY_INTERVAL.toMillis());
+            assertFalse(node.contains("jti:token-1"));
+            assertFalse(node.contains("jti:token-2"));
+            assertEquals(0, node.count("rate:myorg/platform", WINDOW));
+        }
+    }
+
+    @Test
+    void testInboundConnections_cappedAtMaxPeers() throws Exception {
+        // Long discovery interval so accepted connections are not timed out during the test
+        try (ReplicatedSharedState node = new ReplicatedSharedState("node-0", 0, SECRET, Set::of, 2,
+                FLUSH_INTERVAL, Duration.ofSeconds(30));
+             Socket first = new Socket(InetAddress.getLoopbackAddress(), node.getPort());
+             Socket second = new Socket(InetAddress.getLoopbackAddress(), node.getPort());
+             Socket refused = new Socket(InetAddress.getLoopbackAddress(), node.getPort())) {
+
+            refused.setSoTimeout((int) CONVERGENCE_TIMEOUT_MILLIS);
+            assertEquals(-1, refused.getInputStream().read());
+
+            first.setSoTimeout(200);
+            assertThrows(SocketTimeoutException.class, () -> first.getInputStream().read());
+            second.setSoTimeout(200);
+            assertThrows(SocketTimeoutException.class, () -> second.getInputStream().read());
+        }
+    }
+
+    @Test
+    void testSilentInboundConnection_isDropped() throws Exception {
+        ReplicatedSharedState node = startNode(0);
+
+        try (Socket silent = new Socket(InetAddress.getLoopbackAddress(), node.getPort())) {
+            silent.setSoTimeout((int) CONVERGENCE_TIMEOUT_MILLIS);
+            // Read returns end of stream once the node gives up on the connection
+            assertEquals(-1, silent.getInputStream().read());
+        }
+    }
+
+    @Test
+    void testReplicationLatency_medianWithinBound() throws Exception {
+        startNodes(3);
+        awaitConnected();
+
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String key = "jti:latency-" + i;
+            long start = System.nanoTime();
+            nodes.get(i % nodes.size()).markIfAbsent(key, Duration.ofMinutes(5));
+            awaitTrue(() -> nodes.stream().allMatch(node -> node.contains(key)));
+            latencies.add((System.nanoTime() - start) / 1_000_000);
+        }
+
+        latencies.sort(null);
+        long median = latencies.get(latencies.size() / 2);
+
+        // Generous bound so a GC pause or a busy CI host does not fail the build
+        assertTrue(median <= 1000, "Median replication latency " + median + "ms");
+    }
+
+    private void startNodes(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            startNode(i);
+        }
+    }
+
+    private ReplicatedSharedState startNode(int index) throws IOException {
+        ReplicatedSharedState[] self = new ReplicatedSharedState[1];
+        self[0] = new ReplicatedSharedState("node-" + index, 0, SECRET, () -> peersOf(self[0]), MAX_PEERS,
+            FLUSH_INTERVAL, DISCOVERY_INTERVAL);
+        nodes.add(self[0]);
+        return self[0];
+    }
+
+    private Set<InetSocketAddress> peersOf(ReplicatedSharedState self) throws IOException {
+        if (discoveryFailing.get()) {
+            throw new UnknownHostException("oidc-validator-peers");
+        }
+        return nodes.stream()
+            .filter(node -> node != self)
+            .map(node -> new InetSocketAddress("127.0.0.1", node.getPort()))
+            .collect(Collectors.toCollection(() -> new HashSet<>(extraPeers)));
+    }
+
+    private void awaitConnected() throws InterruptedException {
+        String key = "warmup";
+        nodes.forEach(node -> node.increment(key, WINDOW));
+        awaitTrue(() -> nodes.stream().allMatch(node -> node.count(key, WINDOW) == nodes.size()));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + CONVERGENCE_TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("State did not converge within " + CONVERGENCE_TIMEOUT_MILLIS + "ms");
+            }
+            Thread.sleep(1);
+        }
+    }
+}